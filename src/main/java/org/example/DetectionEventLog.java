@@ -0,0 +1,205 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+public class DetectionEventLog implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(DetectionEventLog.class.getName());
+
+    // Defaults: ring size (power of two), summary period, 1-in-N detail sampling and detail lines per second
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final long DEFAULT_SUMMARY_INTERVAL_MILLIS = 10_000;
+    private static final int DEFAULT_SAMPLE_EVERY = 1000;
+    private static final int DEFAULT_MAX_SAMPLED_PER_SECOND = 5;
+
+    // Sources listed per summary, the rest are folded into one line
+    private static final int MAX_SOURCES_PER_SUMMARY = 20;
+    // Writer back-off when the ring is empty
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    // Preallocated event slots; an event is its fields at the same index
+    private final int mask;
+    private final int[] sourceIds;
+    private final double[] timestamps;
+    private final int[] modes;
+    // Sequence number published in each slot, -1 until first written
+    private final AtomicLongArray published;
+
+    // Next sequence to claim (producers) and next sequence to read (writer)
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final long summaryIntervalMillis;
+    private final int sampleEvery;
+    private final int maxSampledPerSecond;
+
+    // Writer-thread state, never touched by producers
+    private final Map<Integer, Long> blockedPerSource = new HashMap<>();
+    private long eventsSeen = 0;
+    private long droppedReported = 0;
+    private long sampledThisSecond = 0;
+    private long sampleWindowStart = System.currentTimeMillis();
+    private long lastSummaryAt;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public DetectionEventLog() {
+        this(DEFAULT_CAPACITY, DEFAULT_SUMMARY_INTERVAL_MILLIS, DEFAULT_SAMPLE_EVERY, DEFAULT_MAX_SAMPLED_PER_SECOND);
+    }
+
+    public DetectionEventLog(int capacity, long summaryIntervalMillis, int sampleEvery, int maxSampledPerSecond) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        if (summaryIntervalMillis <= 0 || sampleEvery < 1 || maxSampledPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid summary or sampling settings");
+        }
+
+        this.mask = capacity - 1;
+        this.sourceIds = new int[capacity];
+        this.timestamps = new double[capacity];
+        this.modes = new int[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+
+        this.summaryIntervalMillis = summaryIntervalMillis;
+        this.sampleEvery = sampleEvery;
+        this.maxSampledPerSecond = maxSampledPerSecond;
+        this.lastSummaryAt = System.currentTimeMillis();
+
+        writer = new Thread(this::runWriter, "detection-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Called on the detection path: no locks, no allocation, no formatting.
+    // Returns false and counts a drop when the writer has fallen a full ring behind.
+    public boolean publish(int sourceId, double timestamp, OverloadController.Mode mode) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail.get() > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) (sequence & mask);
+        sourceIds[slot] = sourceId;
+        timestamps[slot] = timestamp;
+        modes[slot] = mode.ordinal();
+        published.lazySet(slot, sequence);
+        return true;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            if (System.currentTimeMillis() - lastSummaryAt >= summaryIntervalMillis) {
+                writeSummary();
+            }
+        }
+
+        // Flush what was published before close
+        drain();
+        writeSummary();
+    }
+
+    // Reads at most one ring's worth of events, so a sustained flood cannot keep the
+    // writer from reaching the summary check between batches
+    private boolean drain() {
+        boolean any = false;
+        long sequence = tail.get();
+        long limit = sequence + mask + 1;
+
+        while (sequence < limit && published.get((int) (sequence & mask)) == sequence) {
+            int slot = (int) (sequence & mask);
+            record(sourceIds[slot], timestamps[slot], modes[slot]);
+            tail.lazySet(++sequence);
+            any = true;
+        }
+        return any;
+    }
+
+    private void record(int sourceId, double timestamp, int mode) {
+        blockedPerSource.merge(sourceId, 1L, Long::sum);
+
+        // Detail line for 1 in N events, capped per second
+        if (eventsSeen++ % sampleEvery == 0) {
+            long now = System.currentTimeMillis();
+            if (now - sampleWindowStart >= 1000) {
+                sampleWindowStart = now;
+                sampledThisSecond = 0;
+            }
+            if (sampledThisSecond < maxSampledPerSecond) {
+                sampledThisSecond++;
+                LOGGER.info(String.format(Locale.ROOT, "Detected potential attack - Source: %d, Time: %.3f, Mode: %s",
+                        sourceId, timestamp, OverloadController.Mode.values()[mode]));
+            }
+        }
+    }
+
+    private void writeSummary() {
+        // The final summary on close may cover less than a full interval
+        long now = System.currentTimeMillis();
+        long intervalSeconds = Math.max(1, Math.round((now - lastSummaryAt) / 1000.0));
+        lastSummaryAt = now;
+
+        // Busiest sources first
+        List<Map.Entry<Integer, Long>> sources = new ArrayList<>(blockedPerSource.entrySet());
+        sources.sort(Map.Entry.<Integer, Long>comparingByValue().reversed());
+
+        for (int i = 0; i < Math.min(sources.size(), MAX_SOURCES_PER_SUMMARY); i++) {
+            LOGGER.info(String.format(Locale.ROOT, "source %d: %,d blocked in last %ds",
+                    sources.get(i).getKey(), sources.get(i).getValue(), intervalSeconds));
+        }
+        if (sources.size() > MAX_SOURCES_PER_SUMMARY) {
+            long others = 0;
+            for (int i = MAX_SOURCES_PER_SUMMARY; i < sources.size(); i++) {
+                others += sources.get(i).getValue();
+            }
+            LOGGER.info(String.format(Locale.ROOT, "%,d other sources: %,d blocked in last %ds",
+                    sources.size() - MAX_SOURCES_PER_SUMMARY, others, intervalSeconds));
+        }
+
+        long droppedTotal = dropped.get();
+        if (droppedTotal > droppedReported) {
+            LOGGER.warning(String.format(Locale.ROOT, "%,d detection events dropped in last %ds (ring full)",
+                    droppedTotal - droppedReported, intervalSeconds));
+            droppedReported = droppedTotal;
+        }
+
+        blockedPerSource.clear();
+    }
+}
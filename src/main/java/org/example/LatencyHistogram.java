@@ -0,0 +1,69 @@
+package org.example;
+
+public class LatencyHistogram {
+    // Tracked range (in simulation time units); values outside are clamped to the edge buckets
+    private static final double MIN_VALUE = 0.001;
+    private static final double MAX_VALUE = 1_000_000.0;
+    // Relative width of a bucket, i.e. the worst-case error of a reported percentile
+    private static final double PRECISION = 0.01;
+
+    private static final double LOG_BASE = Math.log(1 + PRECISION);
+    private static final int BUCKET_COUNT = (int) Math.ceil(Math.log(MAX_VALUE / MIN_VALUE) / LOG_BASE) + 1;
+
+    // Fixed-size bucket counts, so memory does not grow with the number of samples
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount = 0;
+    private double sum = 0;
+    private double min = Double.MAX_VALUE;
+    private double max = 0;
+
+    public void record(double value) {
+        counts[bucketOf(value)]++;
+        totalCount++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public double getMean() {
+        return totalCount > 0 ? sum / totalCount : 0;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    // quantile in [0, 1], e.g. 0.99 for p99
+    public double getPercentile(double quantile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * totalCount));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                // Report the upper edge of the bucket, bounded by the exact extremes
+                return Math.max(min, Math.min(max, upperBoundOf(bucket)));
+            }
+        }
+        return max;
+    }
+
+    private static int bucketOf(double value) {
+        if (value <= MIN_VALUE) {
+            return 0;
+        }
+        int bucket = (int) Math.ceil(Math.log(value / MIN_VALUE) / LOG_BASE);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    private static double upperBoundOf(int bucket) {
+        return MIN_VALUE * Math.exp(bucket * LOG_BASE);
+    }
+}
@@ -2,7 +2,6 @@ package org.example;
 
 import org.cloudsimplus.brokers.DatacenterBroker;
 import org.cloudsimplus.brokers.DatacenterBrokerSimple;
-import org.cloudsimplus.builders.tables.CloudletsTableBuilder;
 import org.cloudsimplus.cloudlets.Cloudlet;
 import org.cloudsimplus.cloudlets.CloudletSimple;
 import org.cloudsimplus.core.CloudSimPlus;
@@ -58,6 +57,15 @@ public class Main {
     private static final int ATTACK_LENGTH = 2000;
     private static final int ATTACK_PES = 1;
 
+    // Sharded detection: shard counts to compare and requests per shard between rate exchanges
+    private static final int[] SHARD_COUNTS = {1, 2, 4};
+    private static final int SHARD_EXCHANGE_INTERVAL = 25;
+    // Budget large enough to keep every shard in FULL mode, so accuracy reflects sharding only
+    private static final double SHARD_LATENCY_BUDGET_MILLIS = 1000.0;
+
+    // Machine-readable simulation results
+    private static final String RESULTS_FILE = "simulation_results.json";
+
     public static void main(String[] args) {
         // Generate training data if needed
         // generateTrainingData(2000);
@@ -78,11 +86,15 @@ public class Main {
         // Create all cloudlets (both legitimate and attack requests)
         List<RequestDetails> allRequests = createCloudlets(simulation);
 
-        // Weka-based ML detector
-        WekaDetector detector = new WekaDetector();
+        // Collect latency, throughput and detection statistics as requests finish
+        ResultsCollector results = new ResultsCollector();
+        allRequests.forEach(results::track);
 
-        // Filter requests using the detector
-        List<Cloudlet> filteredRequests = filterMaliciousRequests(allRequests, detector, simulation);
+        // Filter requests using the Weka-based ML detector; closing it flushes its event log
+        List<Cloudlet> filteredRequests;
+        try (WekaDetector detector = new WekaDetector()) {
+            filteredRequests = filterMaliciousRequests(allRequests, detector, simulation, results);
+        }
 
         // Submit VMs and filtered cloudlets to the broker
         broker.submitVmList(vmList);
@@ -98,44 +110,58 @@ public class Main {
         simulation.start();
 
         // Print results
-        List<Cloudlet> finishedCloudlets = broker.getCloudletFinishedList();
-        System.out.println("\nFinished requests: " + finishedCloudlets.size() + " out of " + TOTAL_CLOUDLETS);
+        String resultsJson = results.toJson();
+        System.out.println(resultsJson);
+        writeResults(resultsJson);
 
-        // Calculate statistics for both legitimate and attack requests
-        calculateStatistics(finishedCloudlets);
-
-        // Output detailed cloudlet information (limit to first 20 to avoid excessive output)
-        int outputLimit = Math.min(finishedCloudlets.size(), 20);
-        new CloudletsTableBuilder(finishedCloudlets.subList(0, outputLimit)).build();
+        // Compare detection accuracy and throughput as shards are added
+        runShardScaling(allRequests, simulation);
     }
 
-    private static void calculateStatistics(List<Cloudlet> cloudlets) {
-        double avgExecTimeAll = 0;
-        double avgExecTimeLegitimate = 0;
-        int legitimateFinished = 0;
-        int attackFinished = 0;
-
-        for (Cloudlet cloudlet : cloudlets) {
-            avgExecTimeAll += cloudlet.getFinishTime() - cloudlet.getExecStartTime();
-
-            // The first LEGITIMATE_USERS cloudlets are legitimate requests
-            if (cloudlet.getId() < LEGITIMATE_USERS) {
-                avgExecTimeLegitimate += cloudlet.getFinishTime() - cloudlet.getExecStartTime();
-                legitimateFinished++;
-            } else {
-                attackFinished++;
+    private static void runShardScaling(List<RequestDetails> allRequests, CloudSimPlus simulation) {
+        System.out.println("\n====== SHARDED DETECTION SCALING ======");
+        // Discarded warm-up pass, so later rows are not faster only because the JIT is warm
+        for (int shardCount : SHARD_COUNTS) {
+            try (ShardedDetector warmUp = new ShardedDetector(shardCount, SHARD_EXCHANGE_INTERVAL,
+                    SHARD_LATENCY_BUDGET_MILLIS)) {
+                warmUp.classify(allRequests, simulation.clock());
             }
         }
 
-        avgExecTimeAll /= cloudlets.size();
-        avgExecTimeLegitimate = legitimateFinished > 0 ? avgExecTimeLegitimate / legitimateFinished : 0;
+        System.out.println("shards  accuracy  false_pos  false_neg  requests/s  messages  bytes");
+
+        for (int shardCount : SHARD_COUNTS) {
+            boolean[] verdicts;
+            double elapsedSeconds;
+            long messages;
+            long bytes;
+            try (ShardedDetector detector = new ShardedDetector(shardCount, SHARD_EXCHANGE_INTERVAL,
+                    SHARD_LATENCY_BUDGET_MILLIS)) {
+                long start = System.nanoTime();
+                verdicts = detector.classify(allRequests, simulation.clock());
+                elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                messages = detector.getMessagesExchanged();
+                bytes = detector.getBytesExchanged();
+            }
 
-        System.out.println("\n====== DDoS ATTACK SIMULATION RESULTS ======");
-        System.out.println("Legitimate requests completed: " + legitimateFinished + " out of " + LEGITIMATE_USERS);
-        System.out.println("Attack requests completed: " + attackFinished + " out of " + (ATTACK_SOURCES * REQUESTS_PER_ATTACKER));
-        System.out.println("Average execution time for all requests: " + String.format("%.2f", avgExecTimeAll));
-        System.out.println("Average execution time for legitimate requests: " + String.format("%.2f", avgExecTimeLegitimate));
-        System.out.println("===========================================");
+            ResultsCollector results = new ResultsCollector();
+            for (int i = 0; i < verdicts.length; i++) {
+                results.recordDecision(allRequests.get(i), verdicts[i]);
+            }
+
+            System.out.printf("%6d  %7.2f%%  %9d  %9d  %10.0f  %8d  %5d%n",
+                    shardCount, 100.0 * results.getAccuracy(), results.getFalsePositives(),
+                    results.getFalseNegatives(), verdicts.length / elapsedSeconds, messages, bytes);
+        }
+        System.out.println("=======================================");
+    }
+
+    private static void writeResults(String resultsJson) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(RESULTS_FILE))) {
+            writer.println(resultsJson);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     private static void monitorResources(EventInfo info) {
@@ -324,44 +350,41 @@ public class Main {
     private static List<Cloudlet> filterMaliciousRequests(
             List<RequestDetails> allRequests,
             Object detector,
-            CloudSimPlus simulation) {
+            CloudSimPlus simulation,
+            ResultsCollector results) {
 
         List<Cloudlet> filteredCloudlets = new ArrayList<>();
-        int blockedRequests = 0;
-        int falsePositives = 0;
-        int falseNegatives = 0;
         double currentTime = simulation.clock();
 
-        for (RequestDetails request : allRequests) {
+        for (int i = 0; i < allRequests.size(); i++) {
+            RequestDetails request = allRequests.get(i);
             boolean isMalicious = false;
 
             // Call the appropriate isAttack method based on detector type
             if (detector instanceof DDoSDetector) {
                 isMalicious = ((DDoSDetector) detector).isAttack(request, currentTime);
             } else if (detector instanceof WekaDetector) {
-                isMalicious = ((WekaDetector) detector).isAttack(request, currentTime);
+                // Requests still waiting behind this one form the detector backlog
+                int backlog = allRequests.size() - i - 1;
+                isMalicious = ((WekaDetector) detector).isAttack(request, currentTime, backlog);
             }
 
-            // Get ground truth (for evaluation)
-            boolean isActualAttack = request.isAttack();
-
-            // Track false positives and negatives if we know ground truth
-            if (isMalicious && !isActualAttack) {
-                falsePositives++;
-            } else if (!isMalicious && isActualAttack) {
-                falseNegatives++;
-            }
+            // Compare against ground truth (for evaluation)
+            results.recordDecision(request, isMalicious);
 
             if (!isMalicious) {
                 filteredCloudlets.add(request.getCloudlet());
-            } else {
-                blockedRequests++;
             }
         }
 
-        System.out.println("DDoS detector blocked " + blockedRequests + " potentially malicious requests");
-        System.out.println("False positives: " + falsePositives + " (legitimate requests blocked)");
-        System.out.println("False negatives: " + falseNegatives + " (attack requests allowed)");
+        System.out.println("DDoS detector blocked " + results.getBlockedCount() + " potentially malicious requests");
+        System.out.println("False positives: " + results.getFalsePositives() + " (legitimate requests blocked)");
+        System.out.println("False negatives: " + results.getFalseNegatives() + " (attack requests allowed)");
+
+        if (detector instanceof WekaDetector) {
+            System.out.println(((WekaDetector) detector).getOverloadReport());
+            System.out.println("Detection events dropped: " + ((WekaDetector) detector).getDroppedEventCount());
+        }
 
         return filteredCloudlets;
     }
@@ -0,0 +1,139 @@
+package org.example;
+
+import java.util.logging.Logger;
+
+public class OverloadController {
+    private static final Logger LOGGER = Logger.getLogger(OverloadController.class.getName());
+
+    // Detection modes, from most accurate to cheapest
+    public enum Mode {
+        FULL,           // every tree of the forest
+        REDUCED_TREES,  // a subset of the forest
+        THRESHOLD,      // simple source-rate rule (like DDoSDetector)
+        SAMPLING        // threshold rule on a sample of requests per source
+    }
+
+    // Smoothing factor for the moving average of scoring latency
+    private static final double LATENCY_ALPHA = 0.2;
+    // Requests to wait after a mode switch before degrading further
+    private static final int SETTLE_REQUESTS = 16;
+    // Consecutive calm requests needed before stepping back up one mode
+    private static final int RECOVER_AFTER = 64;
+    // Latency must drop below this fraction of the budget to count as calm
+    private static final double RECOVERY_FRACTION = 0.5;
+
+    private final long latencyBudgetNanos;
+    private final int backlogHighWatermark;
+    private final int backlogLowWatermark;
+
+    private Mode mode = Mode.FULL;
+    private double avgLatencyNanos = 0;
+    private int requestsSinceSwitch = 0;
+    private int calmRequests = 0;
+    private int transitions = 0;
+
+    // Modes that cannot run in this detector and are stepped over
+    private final boolean[] skipped = new boolean[Mode.values().length];
+
+    // Wall-clock time and number of requests spent in each mode
+    private final long[] modeNanos = new long[Mode.values().length];
+    private final long[] modeRequests = new long[Mode.values().length];
+    private long modeEnteredAt = -1;  // set on the first scored request
+
+    public OverloadController(double latencyBudgetMillis, int backlogHighWatermark, int backlogLowWatermark) {
+        if (latencyBudgetMillis <= 0) {
+            throw new IllegalArgumentException("Latency budget must be positive");
+        }
+        if (backlogLowWatermark > backlogHighWatermark) {
+            throw new IllegalArgumentException("Low watermark must not exceed high watermark");
+        }
+        this.latencyBudgetNanos = (long) (latencyBudgetMillis * 1_000_000);
+        this.backlogHighWatermark = backlogHighWatermark;
+        this.backlogLowWatermark = backlogLowWatermark;
+    }
+
+    public Mode currentMode() {
+        return mode;
+    }
+
+    // FULL is the fallback for every other mode and cannot be skipped
+    public void skipMode(Mode skip) {
+        if (skip == Mode.FULL) {
+            throw new IllegalArgumentException("FULL mode cannot be skipped");
+        }
+        skipped[skip.ordinal()] = true;
+    }
+
+    public void update(long latencyNanos, int backlog) {
+        if (modeEnteredAt < 0) {
+            modeEnteredAt = System.nanoTime() - latencyNanos;
+        }
+        modeRequests[mode.ordinal()]++;
+        requestsSinceSwitch++;
+        avgLatencyNanos = avgLatencyNanos == 0 ? latencyNanos
+                : (LATENCY_ALPHA * latencyNanos) + ((1 - LATENCY_ALPHA) * avgLatencyNanos);
+
+        boolean overloaded = avgLatencyNanos > latencyBudgetNanos || backlog > backlogHighWatermark;
+        boolean calm = avgLatencyNanos < latencyBudgetNanos * RECOVERY_FRACTION && backlog <= backlogLowWatermark;
+
+        if (overloaded) {
+            calmRequests = 0;
+            // Give the current mode a few requests to show its effect before degrading further
+            Mode cheaper = nextMode(1);
+            if (requestsSinceSwitch >= SETTLE_REQUESTS && cheaper != null) {
+                switchTo(cheaper, backlog);
+            }
+        } else if (calm && mode != Mode.FULL) {
+            if (++calmRequests >= RECOVER_AFTER) {
+                switchTo(nextMode(-1), backlog);
+            }
+        } else {
+            calmRequests = 0;
+        }
+    }
+
+    // Next available mode in the given direction (+1 cheaper, -1 more accurate), or null at the end
+    private Mode nextMode(int step) {
+        for (int i = mode.ordinal() + step; i >= 0 && i < Mode.values().length; i += step) {
+            if (!skipped[i]) {
+                return Mode.values()[i];
+            }
+        }
+        return null;
+    }
+
+    private void switchTo(Mode next, int backlog) {
+        long now = System.nanoTime();
+        modeNanos[mode.ordinal()] += now - modeEnteredAt;
+        modeEnteredAt = now;
+
+        LOGGER.info("Detection mode " + mode + " -> " + next + " (avg latency "
+                + String.format("%.3f", avgLatencyNanos / 1_000_000) + " ms, backlog " + backlog + ")");
+
+        mode = next;
+        requestsSinceSwitch = 0;
+        calmRequests = 0;
+        transitions++;
+    }
+
+    public String getReport() {
+        long[] nanos = modeNanos.clone();
+        if (modeEnteredAt >= 0) {
+            nanos[mode.ordinal()] += System.nanoTime() - modeEnteredAt;
+        }
+
+        long totalNanos = 0;
+        for (long n : nanos) {
+            totalNanos += n;
+        }
+
+        StringBuilder report = new StringBuilder("Detection mode report (" + transitions + " transitions):");
+        for (Mode m : Mode.values()) {
+            double share = totalNanos > 0 ? 100.0 * nanos[m.ordinal()] / totalNanos : 0;
+            report.append(String.format("%n  %-14s %10.2f ms (%5.1f%%) %8d requests%s",
+                    m, nanos[m.ordinal()] / 1_000_000.0, share, modeRequests[m.ordinal()],
+                    skipped[m.ordinal()] ? " (unavailable)" : ""));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class RateSummary {
+    // Width of a time bucket (in simulation time units)
+    private static final double BUCKET_WIDTH = 0.1;
+    // Tolerance for bucket boundaries, so e.g. 0.3 / 0.1 = 2.9999... still maps to bucket 3
+    private static final double EPSILON = 1e-9;
+
+    // Request counts per time bucket (bucket index -> per-source counts and their total)
+    private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+
+    private static class Bucket {
+        final Map<Integer, Integer> sources = new HashMap<>();
+        int total;
+    }
+
+    // weight > 1 stands in for requests that were sampled out
+    public void record(int sourceId, double timestamp, int weight) {
+        add(bucketOf(timestamp), sourceId, weight);
+    }
+
+    // Summaries are plain counts, so merging is addition and the order of merges does not matter
+    public void merge(RateSummary other) {
+        for (Map.Entry<Long, Bucket> bucket : other.buckets.entrySet()) {
+            for (Map.Entry<Integer, Integer> entry : bucket.getValue().sources.entrySet()) {
+                add(bucket.getKey(), entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    // Cost depends on the window length in buckets, not on the number of requests or sources
+    public int countFromSource(int sourceId, double startTime) {
+        int count = 0;
+        for (Bucket bucket : buckets.tailMap(firstBucketFrom(startTime)).values()) {
+            count += bucket.sources.getOrDefault(sourceId, 0);
+        }
+        return count;
+    }
+
+    public int countAll(double startTime) {
+        int count = 0;
+        for (Bucket bucket : buckets.tailMap(firstBucketFrom(startTime)).values()) {
+            count += bucket.total;
+        }
+        return count;
+    }
+
+    public void evictBefore(double time) {
+        buckets.headMap(bucketOf(time)).clear();
+    }
+
+    public boolean isEmpty() {
+        return buckets.isEmpty();
+    }
+
+    // Wire format: bucket count, then per bucket its index, entry count and (sourceId, count) pairs
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(buckets.size());
+            for (Map.Entry<Long, Bucket> bucket : buckets.entrySet()) {
+                out.writeLong(bucket.getKey());
+                out.writeInt(bucket.getValue().sources.size());
+                for (Map.Entry<Integer, Integer> entry : bucket.getValue().sources.entrySet()) {
+                    out.writeInt(entry.getKey());
+                    out.writeInt(entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode rate summary", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static RateSummary fromBytes(byte[] data) {
+        RateSummary summary = new RateSummary();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int bucketCount = in.readInt();
+            for (int i = 0; i < bucketCount; i++) {
+                long bucket = in.readLong();
+                int entries = in.readInt();
+                for (int j = 0; j < entries; j++) {
+                    summary.add(bucket, in.readInt(), in.readInt());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode rate summary", e);
+        }
+        return summary;
+    }
+
+    private void add(long bucket, int sourceId, int count) {
+        Bucket target = buckets.computeIfAbsent(bucket, b -> new Bucket());
+        target.sources.merge(sourceId, count, Integer::sum);
+        target.total += count;
+    }
+
+    private static long bucketOf(double time) {
+        return (long) Math.floor(time / BUCKET_WIDTH + EPSILON);
+    }
+
+    // First bucket lying entirely at or after startTime. Counts never include requests
+    // before the window start, but may miss up to one bucket width at its beginning.
+    private static long firstBucketFrom(double startTime) {
+        return (long) Math.ceil(startTime / BUCKET_WIDTH - EPSILON);
+    }
+}
@@ -0,0 +1,130 @@
+package org.example;
+
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.listeners.CloudletVmEventInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.example.Main.*;
+
+public class ResultsCollector {
+    // Width of a throughput interval (in simulation time units)
+    private static final double THROUGHPUT_INTERVAL = 1.0;
+
+    // Percentiles reported for every latency histogram
+    private static final double[] QUANTILES = {0.50, 0.95, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p95", "p99", "p99_9"};
+
+    private static final int LEGITIMATE = 0;
+    private static final int ATTACK = 1;
+    private static final String[] CLASS_NAMES = {"legitimate", "attack"};
+
+    // Per-class wait and execution time histograms
+    private final LatencyHistogram[] waitTimes = {new LatencyHistogram(), new LatencyHistogram()};
+    private final LatencyHistogram[] execTimes = {new LatencyHistogram(), new LatencyHistogram()};
+
+    // Finished requests per class in each throughput interval
+    private final List<long[]> throughput = new ArrayList<>();
+
+    // Detector confusion matrix against RequestDetails.isAttack()
+    private long truePositives = 0;
+    private long falsePositives = 0;
+    private long trueNegatives = 0;
+    private long falseNegatives = 0;
+
+    // Collects the request's timings when its cloudlet finishes
+    public void track(RequestDetails request) {
+        request.getCloudlet().addOnFinishListener(info -> onFinish(request, info));
+    }
+
+    public void recordDecision(RequestDetails request, boolean flagged) {
+        if (request.isAttack()) {
+            if (flagged) truePositives++; else falseNegatives++;
+        } else {
+            if (flagged) falsePositives++; else trueNegatives++;
+        }
+    }
+
+    public long getBlockedCount() {
+        return truePositives + falsePositives;
+    }
+
+    public long getFalsePositives() {
+        return falsePositives;
+    }
+
+    public long getFalseNegatives() {
+        return falseNegatives;
+    }
+
+    public double getAccuracy() {
+        long decisions = truePositives + falsePositives + trueNegatives + falseNegatives;
+        return decisions > 0 ? (double) (truePositives + trueNegatives) / decisions : 0;
+    }
+
+    private void onFinish(RequestDetails request, CloudletVmEventInfo info) {
+        Cloudlet cloudlet = info.getCloudlet();
+        int requestClass = request.isAttack() ? ATTACK : LEGITIMATE;
+
+        waitTimes[requestClass].record(cloudlet.getWaitingTime());
+        execTimes[requestClass].record(cloudlet.getFinishTime() - cloudlet.getExecStartTime());
+
+        int interval = (int) (info.getTime() / THROUGHPUT_INTERVAL);
+        while (throughput.size() <= interval) {
+            throughput.add(new long[CLASS_NAMES.length]);
+        }
+        throughput.get(interval)[requestClass]++;
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+
+        for (int c = 0; c < CLASS_NAMES.length; c++) {
+            json.append("  \"").append(CLASS_NAMES[c]).append("\": {\n");
+            json.append("    \"finished\": ").append(execTimes[c].getCount()).append(",\n");
+            json.append("    \"wait_time\": ").append(histogramJson(waitTimes[c])).append(",\n");
+            json.append("    \"exec_time\": ").append(histogramJson(execTimes[c])).append("\n");
+            json.append("  },\n");
+        }
+
+        json.append("  \"throughput\": {\n");
+        json.append("    \"interval\": ").append(format(THROUGHPUT_INTERVAL));
+        for (int c = 0; c < CLASS_NAMES.length; c++) {
+            json.append(",\n    \"").append(CLASS_NAMES[c]).append("\": [");
+            for (int i = 0; i < throughput.size(); i++) {
+                json.append(i > 0 ? ", " : "").append(throughput.get(i)[c]);
+            }
+            json.append("]");
+        }
+        json.append("\n  },\n");
+
+        long flagged = truePositives + falsePositives;
+        long attacks = truePositives + falseNegatives;
+        json.append("  \"detector\": {\n");
+        json.append("    \"true_positives\": ").append(truePositives).append(",\n");
+        json.append("    \"false_positives\": ").append(falsePositives).append(",\n");
+        json.append("    \"true_negatives\": ").append(trueNegatives).append(",\n");
+        json.append("    \"false_negatives\": ").append(falseNegatives).append(",\n");
+        json.append("    \"precision\": ").append(format(flagged > 0 ? (double) truePositives / flagged : 0)).append(",\n");
+        json.append("    \"recall\": ").append(format(attacks > 0 ? (double) truePositives / attacks : 0)).append("\n");
+        json.append("  }\n");
+
+        return json.append("}").toString();
+    }
+
+    private static String histogramJson(LatencyHistogram histogram) {
+        StringBuilder json = new StringBuilder("{\"count\": ").append(histogram.getCount());
+        json.append(", \"mean\": ").append(format(histogram.getMean()));
+        for (int i = 0; i < QUANTILES.length; i++) {
+            json.append(", \"").append(QUANTILE_NAMES[i]).append("\": ")
+                    .append(format(histogram.getPercentile(QUANTILES[i])));
+        }
+        json.append(", \"max\": ").append(format(histogram.getMax()));
+        return json.append("}").toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+}
@@ -0,0 +1,131 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import org.example.Main.*;
+
+public class ShardedDetector implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ShardedDetector.class.getName());
+
+    // Each shard runs its own detector and sees only part of the traffic
+    private final List<WekaDetector> shards = new ArrayList<>();
+
+    // Detection events of all shards go to one background writer
+    private final DetectionEventLog eventLog = new DetectionEventLog();
+
+    // Encoded rate summaries waiting to be merged, one inbox per shard
+    private final List<Queue<byte[]>> inboxes = new ArrayList<>();
+
+    // Number of requests a shard scores between two exchanges of rate summaries
+    private final int exchangeInterval;
+
+    // Exchange statistics
+    private final AtomicLong bytesExchanged = new AtomicLong();
+    private final AtomicLong messagesExchanged = new AtomicLong();
+
+    // latencyBudgetMillis is passed to every shard's load shedding
+    public ShardedDetector(int shardCount, int exchangeInterval, double latencyBudgetMillis) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        if (exchangeInterval < 1) {
+            throw new IllegalArgumentException("Exchange interval must be positive");
+        }
+        this.exchangeInterval = exchangeInterval;
+
+        for (int i = 0; i < shardCount; i++) {
+            WekaDetector shard = new WekaDetector(latencyBudgetMillis, eventLog);
+            shard.enableRateExchange();
+            shards.add(shard);
+            inboxes.add(new ConcurrentLinkedQueue<>());
+        }
+        LOGGER.info("Initialized " + shardCount + " detector shards");
+    }
+
+    // Scores all requests, spreading them round-robin over the shards (like a load balancer
+    // in front of several brokers). Returns the verdicts in the order of the given list.
+    public boolean[] classify(List<RequestDetails> requests, double currentTime) {
+        boolean[] verdicts = new boolean[requests.size()];
+        ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int shard = 0; shard < shards.size(); shard++) {
+                int shardIndex = shard;
+                futures.add(executor.submit(() -> runShard(shardIndex, requests, currentTime, verdicts)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Sharded detection interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Sharded detection failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return verdicts;
+    }
+
+    private void runShard(int shardIndex, List<RequestDetails> requests, double currentTime, boolean[] verdicts) {
+        WekaDetector detector = shards.get(shardIndex);
+        Queue<byte[]> inbox = inboxes.get(shardIndex);
+        int scored = 0;
+
+        for (int i = shardIndex; i < requests.size(); i += shards.size()) {
+            // Merge whatever the other shards have published so far
+            byte[] message;
+            while ((message = inbox.poll()) != null) {
+                detector.mergeRemoteRates(RateSummary.fromBytes(message));
+            }
+
+            int backlog = (requests.size() - i - 1) / shards.size();
+            verdicts[i] = detector.isAttack(requests.get(i), currentTime, backlog);
+
+            if (++scored % exchangeInterval == 0) {
+                publish(shardIndex, detector.drainRateDelta());
+            }
+        }
+
+        // Flush the remaining counts so late merges still see them
+        publish(shardIndex, detector.drainRateDelta());
+    }
+
+    private void publish(int fromShard, RateSummary delta) {
+        if (delta.isEmpty() || shards.size() == 1) {
+            return;
+        }
+
+        byte[] message = delta.toBytes();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            if (shard != fromShard) {
+                inboxes.get(shard).add(message);
+                bytesExchanged.addAndGet(message.length);
+                messagesExchanged.incrementAndGet();
+            }
+        }
+    }
+
+    public long getBytesExchanged() {
+        return bytesExchanged.get();
+    }
+
+    public long getMessagesExchanged() {
+        return messagesExchanged.get();
+    }
+
+    @Override
+    public void close() {
+        eventLog.close();
+    }
+}
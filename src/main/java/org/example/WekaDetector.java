@@ -1,5 +1,7 @@
 package org.example;
 
+import weka.classifiers.Classifier;
+import weka.classifiers.IteratedSingleClassifierEnhancer;
 import weka.classifiers.trees.RandomForest;
 import weka.core.DenseInstance;
 import weka.core.Instances;
@@ -7,23 +9,32 @@ import weka.core.SerializationHelper;
 import weka.core.converters.CSVLoader;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.lang.reflect.Field;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import org.example.Main.*;
 
-public class WekaDetector {
+public class WekaDetector implements AutoCloseable {
     private static final Logger LOGGER = Logger.getLogger(WekaDetector.class.getName());
 
     // Time windows for analysis (in simulation time units)
     private static final double SHORT_WINDOW = 1.0;
     private static final double MEDIUM_WINDOW = 10.0;
 
-    // Store recent requests for analysis
-    private final List<RequestDetails> recentRequests = new ArrayList<>();
+    // Overload defaults: per-request latency budget and backlog watermarks
+    private static final double DEFAULT_LATENCY_BUDGET_MILLIS = 5.0;
+    private static final int DEFAULT_BACKLOG_HIGH_WATERMARK = 10000;
+    private static final int DEFAULT_BACKLOG_LOW_WATERMARK = 1000;
+
+    // Degraded mode settings
+    private static final double REDUCED_TREE_FRACTION = 0.2;  // share of the forest used in REDUCED_TREES
+    private static final double THRESHOLD_SOURCE_RATE = 10.0; // requests/s, same rule as DDoSDetector
+    private static final int SAMPLING_INTERVAL = 10;          // score 1 in N requests per source in SAMPLING
+
+    // Recent request counts per source in time buckets, evicted past the medium window
+    private final RateSummary localRates = new RateSummary();
 
     // Request count per source (sourceId -> count)
     private final Map<Integer, Integer> sourceRequestCounts = new HashMap<>();
@@ -31,10 +42,45 @@ public class WekaDetector {
     // Last request timestamp per source
     private final Map<Integer, Double> lastRequestTimes = new HashMap<>();
 
+    // Counts recorded here since the last exchange, and counts merged from other shards.
+    // Only kept when the detector is a shard, see enableRateExchange().
+    private boolean exchangeRates = false;
+    private RateSummary localDelta = new RateSummary();
+    private final RateSummary remoteRates = new RateSummary();
+
+    // Request count per source since entering SAMPLING mode, and the last sampled verdict
+    private final Map<Integer, Integer> sampleCounters = new HashMap<>();
+    private final Map<Integer, Boolean> sampledVerdicts = new HashMap<>();
+
     private final RandomForest model;
     private final Instances dataHeader;
+    private final Classifier[] reducedTrees;
+    private final OverloadController overload;
+    private final DetectionEventLog eventLog;
+    private final boolean ownsEventLog;
 
+    // The detector creates and owns a DetectionEventLog, whose writer thread runs until
+    // close(): use try-with-resources or call close() when done
     public WekaDetector() {
+        this(DEFAULT_LATENCY_BUDGET_MILLIS, DEFAULT_BACKLOG_HIGH_WATERMARK, DEFAULT_BACKLOG_LOW_WATERMARK);
+    }
+
+    // Owns its DetectionEventLog like the no-arg constructor, so it must be closed too
+    public WekaDetector(double latencyBudgetMillis, int backlogHighWatermark, int backlogLowWatermark) {
+        this(latencyBudgetMillis, backlogHighWatermark, backlogLowWatermark, new DetectionEventLog(), true);
+    }
+
+    // Shares a caller-owned event log (used by ShardedDetector); close() leaves it running
+    public WekaDetector(double latencyBudgetMillis, DetectionEventLog eventLog) {
+        this(latencyBudgetMillis, DEFAULT_BACKLOG_HIGH_WATERMARK, DEFAULT_BACKLOG_LOW_WATERMARK, eventLog, false);
+    }
+
+    private WekaDetector(double latencyBudgetMillis, int backlogHighWatermark, int backlogLowWatermark,
+                         DetectionEventLog eventLog, boolean ownsEventLog) {
+        overload = new OverloadController(latencyBudgetMillis, backlogHighWatermark, backlogLowWatermark);
+        this.eventLog = eventLog;
+        this.ownsEventLog = ownsEventLog;
+
         try {
             LOGGER.info("Initializing WekaDetector...");
 
@@ -48,6 +94,11 @@ public class WekaDetector {
             model = (RandomForest) SerializationHelper.read(modelFile.getPath());
             LOGGER.info("Loaded Random Forest model");
 
+            reducedTrees = loadReducedTrees(model);
+            if (reducedTrees == null) {
+                overload.skipMode(OverloadController.Mode.REDUCED_TREES);
+            }
+
             // Create empty dataset with same structure for prediction
             CSVLoader loader = new CSVLoader();
             loader.setSource(new File("ddos_training_data.csv"));
@@ -63,35 +114,35 @@ public class WekaDetector {
     }
 
     public boolean isAttack(RequestDetails request, double currentTime) {
+        return isAttack(request, currentTime, 0);
+    }
+
+    // backlog: number of requests still waiting to be scored after this one
+    public boolean isAttack(RequestDetails request, double currentTime, int backlog) {
+        long start = System.nanoTime();
+        OverloadController.Mode mode = overload.currentMode();
+
         try {
-            // Update analytics with new request
-            updateAnalytics(request, currentTime);
-
-            // Extract features in the same order as training data
-            double sourceRate = calculateSourceRate(request.getSourceId(), currentTime);
-            double systemRate = calculateSystemRate(currentTime);
-            double payloadSize = request.getPayloadSize();
-            double cpuDemand = request.getCloudlet().getUtilizationOfCpu(0);
-            double bwDemand = request.getCloudlet().getUtilizationOfBw(0);
-
-            // Create instance with the correct number of attributes
-            DenseInstance instance = new DenseInstance(dataHeader.numAttributes());
-            instance.setDataset(dataHeader);
-
-            // Set attribute values in the same order as training data
-            instance.setValue(0, sourceRate);
-            instance.setValue(1, systemRate);
-            instance.setValue(2, payloadSize);
-            instance.setValue(3, cpuDemand);
-            instance.setValue(4, bwDemand);
-
-            // Predict
-            double[] distribution = model.distributionForInstance(instance);
-            boolean isAttack = distribution[1] > 0.5;
+            // SAMPLING updates analytics only for the requests it samples
+            if (mode != OverloadController.Mode.SAMPLING) {
+                updateAnalytics(request, currentTime, 1);
+            }
 
+            boolean isAttack = switch (mode) {
+                case FULL -> scoreWithForest(request, currentTime, null);
+                case REDUCED_TREES -> scoreWithForest(request, currentTime, reducedTrees);
+                case THRESHOLD -> scoreWithThreshold(request, currentTime);
+                case SAMPLING -> scoreWithSampling(request, currentTime);
+            };
+
+            // Hand the event to the background writer instead of logging inline
             if (isAttack) {
-                LOGGER.info(String.format("Detected potential attack - Source: %d, Rate: %.2f, System Rate: %.2f",
-                        request.getSourceId(), sourceRate, systemRate));
+                eventLog.publish(request.getSourceId(), request.getTimestamp(), mode);
+            }
+
+            if (mode != OverloadController.Mode.SAMPLING) {
+                sampleCounters.clear();
+                sampledVerdicts.clear();
             }
 
             return isAttack;
@@ -99,15 +150,114 @@ public class WekaDetector {
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error during attack detection", e);
             return false;
+        } finally {
+            overload.update(System.nanoTime() - start, backlog);
+        }
+    }
+
+    public String getOverloadReport() {
+        return overload.getReport();
+    }
+
+    // Detection events dropped because the event log's ring was full
+    public long getDroppedEventCount() {
+        return eventLog.getDroppedCount();
+    }
+
+    // Flushes pending detection events and stops the event writer, if this detector owns it
+    @Override
+    public void close() {
+        if (ownsEventLog) {
+            eventLog.close();
+        }
+    }
+
+    private boolean scoreWithForest(RequestDetails request, double currentTime, Classifier[] trees) throws Exception {
+        // Extract features in the same order as training data
+        double sourceRate = calculateSourceRate(request.getSourceId(), currentTime);
+        double systemRate = calculateSystemRate(currentTime);
+        double payloadSize = request.getPayloadSize();
+        double cpuDemand = request.getCloudlet().getUtilizationOfCpu(0);
+        double bwDemand = request.getCloudlet().getUtilizationOfBw(0);
+
+        // Create instance with the correct number of attributes
+        DenseInstance instance = new DenseInstance(dataHeader.numAttributes());
+        instance.setDataset(dataHeader);
+
+        // Set attribute values in the same order as training data
+        instance.setValue(0, sourceRate);
+        instance.setValue(1, systemRate);
+        instance.setValue(2, payloadSize);
+        instance.setValue(3, cpuDemand);
+        instance.setValue(4, bwDemand);
+
+        // Predict, averaging over a subset of trees when one is given
+        double[] distribution;
+        if (trees == null) {
+            distribution = model.distributionForInstance(instance);
+        } else {
+            distribution = new double[dataHeader.classAttribute().isNumeric() ? 1 : dataHeader.numClasses()];
+            for (Classifier tree : trees) {
+                double[] treeDistribution = tree.distributionForInstance(instance);
+                for (int i = 0; i < distribution.length; i++) {
+                    distribution[i] += treeDistribution[i] / trees.length;
+                }
+            }
+        }
+
+        // The CSV loader reads is_attack as numeric, so the forest may be a regressor
+        // predicting the attack score directly instead of a class distribution
+        double attackScore = distribution.length == 1 ? distribution[0] : distribution[1];
+        return attackScore > 0.5;
+    }
+
+    private boolean scoreWithThreshold(RequestDetails request, double currentTime) {
+        return calculateSourceRate(request.getSourceId(), currentTime) > THRESHOLD_SOURCE_RATE;
+    }
+
+    private boolean scoreWithSampling(RequestDetails request, double currentTime) {
+        int sourceId = request.getSourceId();
+        int count = sampleCounters.merge(sourceId, 1, Integer::sum);
+
+        // Score the first request and every N-th after it, reuse the verdict for the rest.
+        // A sample counts for the requests since the previous sample (itself only for the first),
+        // never for requests that have not arrived yet.
+        if ((count - 1) % SAMPLING_INTERVAL == 0) {
+            int covered = count == 1 ? 1 : SAMPLING_INTERVAL;
+            updateAnalytics(request, currentTime, covered);
+            sampledVerdicts.put(sourceId, scoreWithThreshold(request, currentTime));
+        }
+        return sampledVerdicts.get(sourceId);
+    }
+
+    private Classifier[] loadReducedTrees(RandomForest forest) {
+        // Weka does not expose the individual trees, so read them from the ensemble
+        try {
+            Field field = IteratedSingleClassifierEnhancer.class.getDeclaredField("m_Classifiers");
+            field.setAccessible(true);
+            Classifier[] trees = (Classifier[]) field.get(forest);
+
+            int count = Math.max(1, (int) Math.ceil(trees.length * REDUCED_TREE_FRACTION));
+            Classifier[] reduced = new Classifier[count];
+            System.arraycopy(trees, 0, reduced, 0, count);
+
+            LOGGER.info("Reduced mode will use " + count + " of " + trees.length + " trees");
+            return reduced;
+
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // REDUCED_TREES would cost the same as FULL, so the controller skips it
+            LOGGER.log(Level.WARNING, "Could not access individual trees, REDUCED_TREES mode disabled", e);
+            return null;
         }
     }
 
-    private void updateAnalytics(RequestDetails request, double currentTime) {
-        // Add to recent requests
-        recentRequests.add(request);
+    // weight: number of requests this one stands for (more than 1 when sampling)
+    private void updateAnalytics(RequestDetails request, double currentTime, int weight) {
+        // Count the request in its time bucket
+        localRates.record(request.getSourceId(), request.getTimestamp(), weight);
 
-        // Clean up old requests outside analysis window
-        recentRequests.removeIf(r -> (currentTime - r.getTimestamp()) > MEDIUM_WINDOW);
+        // Drop buckets outside the analysis window
+        localRates.evictBefore(currentTime - MEDIUM_WINDOW);
 
         // Update source request count
         sourceRequestCounts.put(request.getSourceId(),
@@ -115,18 +265,37 @@ public class WekaDetector {
 
         // Update last request time
         lastRequestTimes.put(request.getSourceId(), currentTime);
+
+        // Record for the next exchange with other shards
+        if (exchangeRates) {
+            localDelta.record(request.getSourceId(), request.getTimestamp(), weight);
+            localDelta.evictBefore(currentTime - MEDIUM_WINDOW);
+            remoteRates.evictBefore(currentTime - MEDIUM_WINDOW);
+        }
+    }
+
+    // Called by ShardedDetector; a standalone detector does not record exchange deltas
+    public void enableRateExchange() {
+        exchangeRates = true;
+    }
+
+    // Returns the counts recorded since the previous call, for sending to other shards
+    public RateSummary drainRateDelta() {
+        RateSummary delta = localDelta;
+        localDelta = new RateSummary();
+        return delta;
+    }
+
+    // Adds counts seen by other shards, so rates reflect the traffic of all shards
+    public void mergeRemoteRates(RateSummary summary) {
+        remoteRates.merge(summary);
     }
 
     private double calculateSourceRate(int sourceId, double currentTime) {
         // Count requests from this source in the short window
-        int requestCount = 0;
         double startTime = currentTime - SHORT_WINDOW;
-
-        for (RequestDetails req : recentRequests) {
-            if (req.getSourceId() == sourceId && req.getTimestamp() >= startTime) {
-                requestCount++;
-            }
-        }
+        int requestCount = localRates.countFromSource(sourceId, startTime)
+                + remoteRates.countFromSource(sourceId, startTime);
 
         return requestCount / SHORT_WINDOW;
     }
@@ -134,13 +303,7 @@ public class WekaDetector {
     private double calculateSystemRate(double currentTime) {
         // Count all requests in the medium window
         double startTime = currentTime - MEDIUM_WINDOW;
-        int requestCount = 0;
-
-        for (RequestDetails req : recentRequests) {
-            if (req.getTimestamp() >= startTime) {
-                requestCount++;
-            }
-        }
+        int requestCount = localRates.countAll(startTime) + remoteRates.countAll(startTime);
 
         return requestCount / MEDIUM_WINDOW;
     }